@@ -16,6 +16,7 @@ import android.widget.RelativeLayout;
 import androidx.annotation.NonNull;
 
 import com.codingwithoutpants.gamelib.R;
+import com.codingwithoutpants.gamelib.timer.TimerWheel;
 import com.codingwithoutpants.gamelib.view.ExtendedSurfaceView;
 
 /**
@@ -37,6 +38,9 @@ public abstract class FixedResPortraitActivity extends Activity
     // We'll need this for event handling.
     private Matrix _coordinateTransform = new Matrix();
 
+    // scheduled events.  Advanced by the render thread right before update() is called.
+    private TimerWheel _timerWheel;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -74,6 +78,10 @@ public abstract class FixedResPortraitActivity extends Activity
         float scaleRatio = (float)virtualWidth / (float)surfaceViewWidth;
         _coordinateTransform.setScale(scaleRatio, scaleRatio);
 
+        _timerWheel = new TimerWheel(
+                res.getInteger(R.integer.timerTickMs) * 1000000L,
+                res.getInteger(R.integer.timerWheelSlots));
+
         init(); // initialize objects
 
         // Note to anyone: SurfaceView needs to be created in the UI thread.
@@ -224,6 +232,16 @@ public abstract class FixedResPortraitActivity extends Activity
         // do nothing
     }
 
+    /**
+     * Gets the timer wheel for scheduling game events.  Timers fire on the render thread just
+     * before update() is called, so it's safe to schedule and cancel from init(), update() and
+     * onTouch().
+     * @return timer wheel
+     */
+    protected TimerWheel getTimerWheel() {
+        return _timerWheel;
+    }
+
     /**
      * Update objects based on an elapsed time
      * @param elapsedTimeNs elapsed time, in nanoseconds
@@ -296,6 +314,7 @@ public abstract class FixedResPortraitActivity extends Activity
                         continue;
                     }
                     synchronized (_activity._objLock) {
+                        _activity._timerWheel.advance(advTime);
                         _activity.update(advTime);
                     }
                 }
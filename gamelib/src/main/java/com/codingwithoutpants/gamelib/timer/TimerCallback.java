@@ -0,0 +1,14 @@
+package com.codingwithoutpants.gamelib.timer;
+
+/**
+ * Receives notifications from a TimerWheel when a scheduled timer goes off
+ */
+public interface TimerCallback {
+
+    /**
+     * Called when a timer fires.  It's safe to schedule or cancel timers from in here,
+     * including cancelling the timer that's currently firing.
+     * @param timerId id of the timer that fired, as returned by schedule()
+     */
+    void onTimer(long timerId);
+}
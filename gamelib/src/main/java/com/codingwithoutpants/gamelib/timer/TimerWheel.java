@@ -0,0 +1,413 @@
+package com.codingwithoutpants.gamelib.timer;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+
+/**
+ * Schedules timed events on a hashed timing wheel.
+ * Time is chopped into ticks of a fixed length, and each pending timer lives in the slot for
+ * the tick it's due on (modulo the number of slots).  Scheduling and cancelling are O(1), and
+ * advancing only has to look at the slots for ticks that actually went by, so pending timers
+ * cost nothing until their slot comes around.
+ *
+ * Timer nodes are pooled and reused, so callers hold on to a long id instead of an object.
+ * Ids from timers that already fired or were cancelled are simply ignored.
+ *
+ * This class is NOT thread-safe.  FixedResPortraitActivity only touches it while holding its
+ * object lock, so anything called from update() or onTouch() can use it freely.
+ */
+public class TimerWheel {
+
+    /**
+     * Id that will never be handed out for a timer.  Handy as a "no timer" value.
+     */
+    public static final long INVALID_ID = 0L;
+
+    // node states
+    private static final int _STATE_FREE = 0;    // sitting in the pool
+    private static final int _STATE_PENDING = 1; // linked into a slot
+    private static final int _STATE_FIRING = 2;  // pulled out of its slot, about to fire
+    private static final int _STATE_RUNNING = 3; // its callback is running right now
+
+    private final long _tickNs;
+    private final int _slotMask;
+    private final Node[] _slots;     // head of each slot's doubly-linked list
+    private final Node[] _slotTails; // tail of each slot's list, so timers fire in FIFO order
+
+    private final ArrayList<Node> _nodes = new ArrayList<>(); // every node ever made, by index
+    private Node _freeHead; // pool of unused nodes, linked through _next
+
+    private long _curTick;   // last tick that was processed
+    private long _pendingNs; // time that went by since _curTick
+    private int _count;      // number of timers that will still fire
+    private boolean _firing; // true while expire() is running callbacks
+
+    /**
+     * Constructor
+     * @param tickNs length of one tick, in nanoseconds.  This is the resolution of the timers.
+     * @param slotCount number of slots in the wheel.  Rounded up to a power of 2.
+     */
+    public TimerWheel(long tickNs, int slotCount) {
+        if (tickNs <= 0) {
+            throw new IllegalArgumentException("tickNs must be positive");
+        }
+        if (slotCount <= 0 || slotCount > (1 << 30)) {
+            throw new IllegalArgumentException("slotCount out of range");
+        }
+
+        int size = 1;
+        while (size < slotCount) {
+            size <<= 1;
+        }
+
+        _tickNs = tickNs;
+        _slotMask = size - 1;
+        _slots = new Node[size];
+        _slotTails = new Node[size];
+    }
+
+    /**
+     * Schedule a timer that fires once.  Timers due on the same tick fire in the order they
+     * were scheduled.
+     * @param delayNs delay before firing, in nanoseconds.  Rounded up to a whole tick.
+     * @param callback callback to notify
+     * @return id of the new timer
+     */
+    public long schedule(long delayNs, @NonNull TimerCallback callback) {
+        return add(delayNs, 0L, callback);
+    }
+
+    /**
+     * Schedule a timer that keeps firing until it's cancelled
+     * @param delayNs delay before first firing, in nanoseconds.  Rounded up to a whole tick.
+     * @param periodNs time between firings after that, in nanoseconds.  Rounded up to a whole tick.
+     *                 Must be positive.
+     * @param callback callback to notify
+     * @return id of the new timer
+     */
+    public long scheduleRepeating(long delayNs, long periodNs, @NonNull TimerCallback callback) {
+        if (periodNs <= 0) {
+            throw new IllegalArgumentException("periodNs must be positive");
+        }
+        return add(delayNs, toTicks(periodNs), callback);
+    }
+
+    /**
+     * Cancel a timer.  A repeating timer that cancels itself from its own callback won't repeat.
+     * @param id timer id
+     * @return true if the timer would have fired again; false otherwise
+     */
+    public boolean cancel(long id) {
+        Node node = find(id);
+        if (node == null) {
+            return false;
+        }
+
+        if (node._state == _STATE_PENDING) {
+            unlink(node);
+            release(node);
+            _count--;
+        } else {
+            // it's in the middle of being fired; expire() will clean it up
+            retire(node);
+        }
+        return true;
+    }
+
+    /**
+     * Check whether a timer is still waiting to fire
+     * @param id timer id
+     * @return true if the timer will fire again; false otherwise
+     */
+    public boolean isPending(long id) {
+        return find(id) != null;
+    }
+
+    /**
+     * @return number of timers waiting to fire.  A one-shot timer stops counting as soon as its
+     * callback starts, and a cancelled timer stops counting right away.
+     */
+    public int size() {
+        return _count;
+    }
+
+    /**
+     * Cancel every timer
+     */
+    public void clear() {
+        for (Node node : _nodes) {
+            if (node._state == _STATE_PENDING) {
+                unlink(node);
+                release(node);
+                _count--;
+            } else if (isLive(node)) {
+                retire(node);
+            }
+        }
+    }
+
+    /**
+     * Move time forward, firing every timer that comes due
+     * @param elapsedNs elapsed time, in nanoseconds
+     */
+    public void advance(long elapsedNs) {
+        if (elapsedNs <= 0) {
+            return;
+        }
+
+        _pendingNs += elapsedNs;
+
+        while (_pendingNs >= _tickNs) {
+            if (_count == 0) {
+                // nothing to fire; skip ahead
+                long ticks = _pendingNs / _tickNs;
+                _curTick += ticks;
+                _pendingNs -= ticks * _tickNs;
+                break;
+            }
+
+            // Step one tick at a time, so that if a callback throws, the ticks we haven't
+            // gotten to yet are still sitting in _pendingNs for the next call.
+            _curTick++;
+            _pendingNs -= _tickNs;
+            expire(_slots[(int)(_curTick & _slotMask)]);
+        }
+    }
+
+    /**
+     * Fire everything in a slot that's due on the current tick
+     * @param head first node in the slot
+     */
+    private void expire(Node head) {
+        // Pull due nodes out of the slot before firing any of them.  Callbacks are free to
+        // schedule and cancel, which would otherwise trash the list we're walking.
+        Node firingHead = null;
+        Node firingTail = null;
+
+        Node node = head;
+        while (node != null) {
+            Node next = node._next;
+            if (node._deadline <= _curTick) {
+                unlink(node);
+                node._state = _STATE_FIRING;
+                if (firingTail == null) {
+                    firingHead = node;
+                } else {
+                    firingTail._next = node;
+                }
+                firingTail = node;
+            }
+            node = next;
+        }
+
+        boolean wasFiring = _firing;
+        _firing = true;
+        try {
+            while (firingHead != null) {
+                node = firingHead;
+                firingHead = node._next;
+                node._next = null;
+
+                try {
+                    if (!node._cancelled) {
+                        node._state = _STATE_RUNNING;
+                        if (node._periodTicks == 0) {
+                            _count--; // a one-shot is done as soon as it starts firing
+                        }
+                        node._callback.onTimer(node.id());
+                    }
+                } finally {
+                    if (!node._cancelled && node._periodTicks > 0) {
+                        node._deadline = _curTick + node._periodTicks;
+                        link(node);
+                    } else {
+                        release(node);
+                    }
+                }
+            }
+        } finally {
+            _firing = wasFiring;
+
+            // A callback threw.  Put whatever didn't get to fire back on the wheel for the
+            // next tick so nothing leaks.
+            while (firingHead != null) {
+                node = firingHead;
+                firingHead = node._next;
+                node._next = null;
+
+                if (node._cancelled) {
+                    release(node);
+                } else {
+                    node._deadline = _curTick + 1;
+                    link(node);
+                }
+            }
+        }
+    }
+
+    /**
+     * Grab a node from the pool and put it on the wheel
+     */
+    private long add(long delayNs, long periodTicks, TimerCallback callback) {
+        if (callback == null) {
+            throw new IllegalArgumentException("callback can't be null");
+        }
+
+        Node node = _freeHead;
+        if (node != null) {
+            _freeHead = node._next;
+            node._next = null;
+        } else {
+            node = new Node(_nodes.size());
+            _nodes.add(node);
+        }
+
+        node._callback = callback;
+        node._periodTicks = periodTicks;
+        node._cancelled = false;
+        // Count the partial tick that already went by, or the timer could fire early.  Inside a
+        // callback, _pendingNs still holds the ticks this advance() hasn't gotten to yet, so
+        // count from the tick that's firing instead, the same way repeating timers do.
+        long sinceTickNs = _firing ? 0L : _pendingNs;
+        if (delayNs > Long.MAX_VALUE - sinceTickNs) {
+            delayNs = Long.MAX_VALUE - sinceTickNs;
+        }
+        node._deadline = _curTick + toTicks(delayNs + sinceTickNs);
+        link(node);
+        _count++;
+
+        return node.id();
+    }
+
+    /**
+     * Cancel a node that's already been pulled out of its slot.  expire() releases it when
+     * it's done with it.
+     */
+    private void retire(Node node) {
+        node._cancelled = true;
+        _count--;
+    }
+
+    /**
+     * Return a node to the pool.  Bumping the generation makes any old ids for it go stale.
+     * Callers are responsible for keeping _count straight.
+     */
+    private void release(Node node) {
+        node._state = _STATE_FREE;
+        node._callback = null;
+        node._generation++;
+        if (node._generation == 0) {
+            node._generation = 1; // keep INVALID_ID from ever coming up
+        }
+        node._prev = null;
+        node._next = _freeHead;
+        _freeHead = node;
+    }
+
+    /**
+     * Append a node to the tail of the slot for its deadline
+     */
+    private void link(Node node) {
+        int slot = (int)(node._deadline & _slotMask);
+        Node tail = _slotTails[slot];
+
+        node._state = _STATE_PENDING;
+        node._prev = tail;
+        node._next = null;
+        if (tail != null) {
+            tail._next = node;
+        } else {
+            _slots[slot] = node;
+        }
+        _slotTails[slot] = node;
+    }
+
+    /**
+     * Remove a node from its slot
+     */
+    private void unlink(Node node) {
+        int slot = (int)(node._deadline & _slotMask);
+
+        if (node._prev != null) {
+            node._prev._next = node._next;
+        } else {
+            _slots[slot] = node._next;
+        }
+        if (node._next != null) {
+            node._next._prev = node._prev;
+        } else {
+            _slotTails[slot] = node._prev;
+        }
+        node._prev = null;
+        node._next = null;
+    }
+
+    /**
+     * Look up a live node by id
+     * @return node, or null if the id is stale or bogus
+     */
+    private Node find(long id) {
+        int index = (int)id;
+        int generation = (int)(id >>> 32);
+
+        if (index < 0 || index >= _nodes.size()) {
+            return null;
+        }
+
+        Node node = _nodes.get(index);
+        if (node._generation != generation || !isLive(node)) {
+            return null;
+        }
+        return node;
+    }
+
+    /**
+     * @return true if the node is going to fire again
+     */
+    private boolean isLive(Node node) {
+        if (node._state == _STATE_FREE || node._cancelled) {
+            return false;
+        }
+        // a one-shot that's firing right now won't fire again
+        return node._state != _STATE_RUNNING || node._periodTicks > 0;
+    }
+
+    /**
+     * Convert a time span to ticks, rounding up.  Always at least 1 tick so nothing fires
+     * on the tick it was scheduled in.
+     */
+    private long toTicks(long ns) {
+        if (ns <= _tickNs) {
+            return 1L;
+        }
+        long ticks = ns / _tickNs;
+        return (ns % _tickNs == 0) ? ticks : ticks + 1;
+    }
+
+    /**
+     * Pooled timer entry
+     */
+    private static class Node {
+        final int _index;    // position in _nodes; never changes
+        int _generation = 1; // bumped every time the node goes back to the pool
+
+        int _state = _STATE_FREE;
+        boolean _cancelled;
+
+        long _deadline;    // tick this node fires on
+        long _periodTicks; // 0 for one-shot timers
+        TimerCallback _callback;
+
+        Node _prev;
+        Node _next;
+
+        Node(int index) {
+            _index = index;
+        }
+
+        long id() {
+            return ((long)_generation << 32) | (_index & 0xFFFFFFFFL);
+        }
+    }
+}
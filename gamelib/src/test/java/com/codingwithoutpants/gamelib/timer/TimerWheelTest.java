@@ -0,0 +1,344 @@
+package com.codingwithoutpants.gamelib.timer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for TimerWheel
+ */
+public class TimerWheelTest {
+
+    private static final long _TICK_NS = 5000000L; // 5 ms
+    private static final int _SLOTS = 8;
+
+    /**
+     * Records the tick (in elapsed nanoseconds) that each timer fired on
+     */
+    private static class Recorder implements TimerCallback {
+        final List<Long> ids = new ArrayList<>();
+        final List<Long> times = new ArrayList<>();
+        long now;
+
+        @Override
+        public void onTimer(long timerId) {
+            ids.add(timerId);
+            times.add(now);
+        }
+    }
+
+    /**
+     * Advance the wheel one tick at a time, keeping the recorder's clock in step
+     */
+    private static void run(TimerWheel wheel, Recorder rec, int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            rec.now += _TICK_NS;
+            wheel.advance(_TICK_NS);
+        }
+    }
+
+    @Test
+    public void oneShot_firesOnDueTick() {
+        TimerWheel wheel = new TimerWheel(_TICK_NS, _SLOTS);
+        Recorder rec = new Recorder();
+
+        long id = wheel.schedule(3 * _TICK_NS, rec);
+        run(wheel, rec, 2);
+        assertTrue(rec.ids.isEmpty());
+        assertTrue(wheel.isPending(id));
+
+        run(wheel, rec, 1);
+        assertEquals(1, rec.ids.size());
+        assertEquals(id, (long)rec.ids.get(0));
+        assertFalse(wheel.isPending(id));
+        assertEquals(0, wheel.size());
+
+        run(wheel, rec, 20);
+        assertEquals(1, rec.ids.size());
+    }
+
+    @Test
+    public void oneShot_neverFiresEarly() {
+        TimerWheel wheel = new TimerWheel(_TICK_NS, _SLOTS);
+        Recorder rec = new Recorder();
+
+        wheel.advance(4900000L); // most of a tick
+        wheel.schedule(_TICK_NS, rec);
+
+        wheel.advance(200000L);
+        assertTrue(rec.ids.isEmpty());
+
+        wheel.advance(4700000L); // exactly 4.9 ms since scheduling
+        assertTrue(rec.ids.isEmpty());
+
+        wheel.advance(_TICK_NS);
+        assertEquals(1, rec.ids.size());
+    }
+
+    @Test
+    public void sameTick_firesInScheduleOrder() {
+        TimerWheel wheel = new TimerWheel(_TICK_NS, _SLOTS);
+        Recorder rec = new Recorder();
+
+        long a = wheel.schedule(2 * _TICK_NS, rec);
+        long b = wheel.schedule(2 * _TICK_NS, rec);
+        long c = wheel.schedule(2 * _TICK_NS, rec);
+        run(wheel, rec, 2);
+
+        assertEquals(3, rec.ids.size());
+        assertEquals(a, (long)rec.ids.get(0));
+        assertEquals(b, (long)rec.ids.get(1));
+        assertEquals(c, (long)rec.ids.get(2));
+    }
+
+    @Test
+    public void repeating_doesNotDrift() {
+        TimerWheel wheel = new TimerWheel(_TICK_NS, _SLOTS);
+        Recorder rec = new Recorder();
+
+        wheel.scheduleRepeating(2 * _TICK_NS, 3 * _TICK_NS, rec);
+        run(wheel, rec, 100);
+
+        assertEquals(33, rec.times.size());
+        for (int i = 0; i < rec.times.size(); i++) {
+            assertEquals((2 + 3 * i) * _TICK_NS, (long)rec.times.get(i));
+        }
+        assertEquals(1, wheel.size());
+    }
+
+    @Test
+    public void rescheduleFromCallback_countsFromFiringTick() {
+        final TimerWheel wheel = new TimerWheel(_TICK_NS, _SLOTS);
+        final int[] oneShotCount = new int[1];
+        final int[] repeatCount = new int[1];
+
+        wheel.schedule(_TICK_NS, new TimerCallback() {
+            @Override
+            public void onTimer(long timerId) {
+                oneShotCount[0]++;
+                wheel.schedule(_TICK_NS, this);
+            }
+        });
+        wheel.scheduleRepeating(_TICK_NS, _TICK_NS, new TimerCallback() {
+            @Override
+            public void onTimer(long timerId) {
+                repeatCount[0]++;
+            }
+        });
+
+        wheel.advance(10 * _TICK_NS); // one big frame
+        assertEquals(10, repeatCount[0]);
+        assertEquals(repeatCount[0], oneShotCount[0]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void repeating_rejectsNonPositivePeriod() {
+        TimerWheel wheel = new TimerWheel(_TICK_NS, _SLOTS);
+        wheel.scheduleRepeating(_TICK_NS, 0L, new Recorder());
+    }
+
+    @Test
+    public void cancel_whilePending() {
+        TimerWheel wheel = new TimerWheel(_TICK_NS, _SLOTS);
+        Recorder rec = new Recorder();
+
+        long id = wheel.schedule(2 * _TICK_NS, rec);
+        assertTrue(wheel.cancel(id));
+        assertFalse(wheel.isPending(id));
+        assertFalse(wheel.cancel(id));
+        assertEquals(0, wheel.size());
+
+        run(wheel, rec, 10);
+        assertTrue(rec.ids.isEmpty());
+    }
+
+    @Test
+    public void cancel_selfFromCallback() {
+        final TimerWheel wheel = new TimerWheel(_TICK_NS, _SLOTS);
+        final int[] count = new int[1];
+        final boolean[] results = new boolean[2];
+
+        wheel.scheduleRepeating(_TICK_NS, _TICK_NS, new TimerCallback() {
+            @Override
+            public void onTimer(long timerId) {
+                if (++count[0] == 3) {
+                    results[0] = wheel.isPending(timerId);
+                    results[1] = wheel.cancel(timerId);
+                }
+            }
+        });
+
+        wheel.advance(20 * _TICK_NS);
+        assertEquals(3, count[0]);
+        assertTrue(results[0]);
+        assertTrue(results[1]);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void oneShot_notPendingInsideOwnCallback() {
+        final TimerWheel wheel = new TimerWheel(_TICK_NS, _SLOTS);
+        final boolean[] results = {true, true};
+
+        wheel.schedule(_TICK_NS, new TimerCallback() {
+            @Override
+            public void onTimer(long timerId) {
+                results[0] = wheel.isPending(timerId);
+                results[1] = wheel.cancel(timerId);
+            }
+        });
+
+        wheel.advance(_TICK_NS);
+        assertFalse(results[0]);
+        assertFalse(results[1]);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void size_countsOnlyTimersThatWillFire() {
+        final TimerWheel wheel = new TimerWheel(_TICK_NS, _SLOTS);
+        final Recorder rec = new Recorder();
+        final int[] sizes = new int[2];
+        final long[] victim = new long[1];
+
+        wheel.schedule(_TICK_NS, new TimerCallback() {
+            @Override
+            public void onTimer(long timerId) {
+                sizes[0] = wheel.size(); // this one-shot no longer counts
+                wheel.cancel(victim[0]);
+                sizes[1] = wheel.size(); // neither does the cancelled one
+            }
+        });
+        victim[0] = wheel.schedule(_TICK_NS, rec); // same tick
+        wheel.scheduleRepeating(_TICK_NS, _TICK_NS, rec);
+        assertEquals(3, wheel.size());
+
+        wheel.advance(_TICK_NS);
+        assertEquals(2, sizes[0]);
+        assertEquals(1, sizes[1]);
+        assertEquals(1, wheel.size());
+        assertEquals(1, rec.ids.size());
+    }
+
+    @Test
+    public void staleId_ignoredAfterNodeReused() {
+        TimerWheel wheel = new TimerWheel(_TICK_NS, _SLOTS);
+        Recorder rec = new Recorder();
+
+        long oldId = wheel.schedule(_TICK_NS, rec);
+        wheel.advance(_TICK_NS);
+
+        long newId = wheel.schedule(_TICK_NS, rec); // reuses the pooled node
+        assertNotEquals(oldId, newId);
+        assertFalse(wheel.isPending(oldId));
+        assertFalse(wheel.cancel(oldId));
+        assertTrue(wheel.isPending(newId));
+
+        wheel.advance(_TICK_NS);
+        assertEquals(2, rec.ids.size());
+        assertEquals(newId, (long)rec.ids.get(1));
+
+        assertFalse(wheel.isPending(TimerWheel.INVALID_ID));
+        assertFalse(wheel.cancel(TimerWheel.INVALID_ID));
+    }
+
+    @Test
+    public void clear_fromCallback() {
+        final TimerWheel wheel = new TimerWheel(_TICK_NS, _SLOTS);
+        final Recorder rec = new Recorder();
+
+        wheel.schedule(_TICK_NS, new TimerCallback() {
+            @Override
+            public void onTimer(long timerId) {
+                wheel.clear();
+            }
+        });
+        wheel.schedule(_TICK_NS, rec);      // same tick, after the clear
+        wheel.schedule(3 * _TICK_NS, rec);  // later tick
+        wheel.scheduleRepeating(_TICK_NS * 2, _TICK_NS, rec);
+
+        wheel.advance(_TICK_NS);
+        assertEquals(0, wheel.size());
+
+        wheel.advance(10 * _TICK_NS);
+        assertTrue(rec.ids.isEmpty());
+
+        // the wheel still works afterwards
+        wheel.schedule(_TICK_NS, rec);
+        wheel.advance(_TICK_NS);
+        assertEquals(1, rec.ids.size());
+    }
+
+    @Test
+    public void throwingCallback_doesNotLeakTimers() {
+        TimerWheel wheel = new TimerWheel(_TICK_NS, _SLOTS);
+        Recorder rec = new Recorder();
+
+        long a = wheel.schedule(_TICK_NS, rec);
+        wheel.schedule(_TICK_NS, new TimerCallback() {
+            @Override
+            public void onTimer(long timerId) {
+                throw new IllegalStateException("boom");
+            }
+        });
+        long c = wheel.schedule(_TICK_NS, rec);
+
+        try {
+            wheel.advance(_TICK_NS);
+            fail("expected the callback's exception");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+
+        assertEquals(1, rec.ids.size());
+        assertEquals(a, (long)rec.ids.get(0));
+        assertTrue(wheel.isPending(c));
+
+        wheel.advance(_TICK_NS);
+        assertEquals(2, rec.ids.size());
+        assertEquals(c, (long)rec.ids.get(1));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void emptyWheel_fastForwards() {
+        TimerWheel wheel = new TimerWheel(_TICK_NS, _SLOTS);
+        Recorder rec = new Recorder();
+
+        // a long stall with nothing scheduled, plus a partial tick
+        wheel.advance(1000000 * _TICK_NS + 4900000L);
+
+        wheel.schedule(_TICK_NS, rec);
+        wheel.advance(200000L);
+        assertTrue(rec.ids.isEmpty());
+
+        wheel.advance(_TICK_NS);
+        assertEquals(1, rec.ids.size());
+    }
+
+    @Test
+    public void longDelay_survivesWheelRotations() {
+        TimerWheel wheel = new TimerWheel(_TICK_NS, _SLOTS);
+        Recorder rec = new Recorder();
+
+        // lands in the same slot as a near timer, but several rotations later
+        long far = wheel.schedule((3 * _SLOTS + 2) * _TICK_NS, rec);
+        long near = wheel.schedule(2 * _TICK_NS, rec);
+
+        run(wheel, rec, 2);
+        assertEquals(1, rec.ids.size());
+        assertEquals(near, (long)rec.ids.get(0));
+
+        run(wheel, rec, 3 * _SLOTS - 1);
+        assertEquals(1, rec.ids.size());
+        assertTrue(wheel.isPending(far));
+
+        run(wheel, rec, 1);
+        assertEquals(2, rec.ids.size());
+        assertEquals(far, (long)rec.ids.get(1));
+        assertEquals((3 * _SLOTS + 2) * _TICK_NS, (long)rec.times.get(1));
+    }
+}